@@ -0,0 +1,330 @@
+// --== CS400 Spring 2023 File Header Information ==--
+// Name: Sai Gungurthi
+// Email: sgungurthi@wisc.edu
+// Team: AK
+// TA: Gary Dahl
+// Lecturer: Gary Dahl
+// Notes to Grader: None
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single-writer front end for a RedBlackTree that is shared by many producer threads. Producers
+ * enqueue insert and remove requests into a lock-free queue and get back a future. One writer
+ * thread drains the queue in batches, sorts each batch by key, applies it to the tree in that
+ * order, and completes each producer's future with the result of its operation.
+ *
+ * While a writer is running, it is the only thread allowed to touch the tree. Read the tree only
+ * after close() has returned.
+ *
+ * Futures are never completed on the writer thread. Once a batch is applied, its futures are
+ * completed together by one task on the completion executor, so non-async callbacks (thenApply,
+ * thenAccept, ...) run on that executor. A callback may block on another mutation of this writer,
+ * but a slow callback delays the rest of its own batch; use the *Async variants for heavy work.
+ * The default completion executor is a cached pool of daemon threads. A supplied executor that
+ * cannot grow (for example a single thread) will deadlock if a callback waits on a later batch.
+ *
+ * If the writer thread itself fails (for example when a compareTo throws while a batch is sorted),
+ * every pending future completes exceptionally and the writer behaves as if it had been closed.
+ */
+public class BatchedRedBlackTreeWriter<T extends Comparable<T>> implements AutoCloseable {
+
+    /**
+     * This class represents a single queued insert or remove request.
+     */
+    protected static class Mutation<T> {
+        public final T data;
+        public final boolean isInsert; // true for insert, false for remove
+        public final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        // outcome recorded by the writer thread, handed to the completion executor with the batch;
+        // done is set once the outcome is known, so a failing writer can tell which ones reached the tree
+        public boolean done;
+        public boolean applied;
+        public RuntimeException failure;
+
+        public Mutation(T data, boolean isInsert) {
+            this.data = data;
+            this.isInsert = isInsert;
+        }
+    }
+
+    private static final String CLOSED_MESSAGE = "This BatchedRedBlackTreeWriter has been closed.";
+
+    protected final RedBlackTree<T> tree; // only ever mutated by the writer thread
+    protected final int maxBatchSize; // most mutations applied in one batch
+    protected final long maxDelayNanos; // longest a batch waits to fill up after its first mutation
+
+    private final ConcurrentLinkedQueue<Mutation<T>> queue = new ConcurrentLinkedQueue<>();
+    private final Executor completionExecutor; // completes futures so callbacks never run on the writer
+    private final ExecutorService ownedExecutor; // the default completion executor, null when supplied
+    private final Thread writer;
+
+    // set by the writer just before it parks on an empty queue; the one producer that clears it is
+    // the only one that unparks the writer, so producers never touch the writer thread otherwise
+    private final AtomicBoolean writerParked = new AtomicBoolean(false);
+
+    // closed stops new submissions, terminated is set once the writer has applied its last batch
+    private volatile boolean closed = false;
+    private volatile boolean terminated = false;
+
+    /**
+     * Starts a writer thread that applies queued mutations to the provided tree, completing futures
+     * on a cached pool of daemon threads.
+     * @param tree the tree to mutate; no other thread may use it until close() returns
+     * @param maxBatchSize the most mutations that are sorted and applied together
+     * @param maxDelay how long a partially filled batch waits for more mutations before it is
+     *      applied; zero applies whatever is queued right away
+     * @param unit the time unit of maxDelay
+     * @throws NullPointerException when tree or unit is null
+     * @throws IllegalArgumentException when maxBatchSize is less than 1 or maxDelay is negative
+     */
+    public BatchedRedBlackTreeWriter(RedBlackTree<T> tree, int maxBatchSize, long maxDelay, TimeUnit unit)
+            throws NullPointerException, IllegalArgumentException {
+        this(tree, maxBatchSize, maxDelay, unit, null);
+    }
+
+    /**
+     * Starts a writer thread that applies queued mutations to the provided tree.
+     * @param tree the tree to mutate; no other thread may use it until close() returns
+     * @param maxBatchSize the most mutations that are sorted and applied together
+     * @param maxDelay how long a partially filled batch waits for more mutations before it is
+     *      applied; zero applies whatever is queued right away
+     * @param unit the time unit of maxDelay
+     * @param completionExecutor runs the tasks that complete each batch's futures, or null to use
+     *      a cached pool of daemon threads that is shut down with this writer
+     * @throws NullPointerException when tree or unit is null
+     * @throws IllegalArgumentException when maxBatchSize is less than 1 or maxDelay is negative
+     */
+    public BatchedRedBlackTreeWriter(RedBlackTree<T> tree, int maxBatchSize, long maxDelay, TimeUnit unit,
+            Executor completionExecutor) throws NullPointerException, IllegalArgumentException {
+        if (tree == null || unit == null) {
+            throw new NullPointerException("The tree and time unit cannot be null.");
+        }
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("The max batch size must be at least 1: " + maxBatchSize);
+        }
+        if (maxDelay < 0) {
+            throw new IllegalArgumentException("The max delay cannot be negative: " + maxDelay);
+        }
+        this.tree = tree;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = unit.toNanos(maxDelay);
+        if (completionExecutor == null) {
+            this.ownedExecutor = Executors.newCachedThreadPool(task -> {
+                Thread completer = new Thread(task, "rbt-batch-completer");
+                completer.setDaemon(true);
+                return completer;
+            });
+            this.completionExecutor = ownedExecutor;
+        } else {
+            this.ownedExecutor = null;
+            this.completionExecutor = completionExecutor;
+        }
+        this.writer = new Thread(this::runWriter, "rbt-batch-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queues an insertion of data into the tree.
+     * @param data to be added into the tree
+     * @return a future that completes with true once data is inserted, or exceptionally with an
+     *      IllegalArgumentException when data is already contained in the tree, or with an
+     *      IllegalStateException when this writer is closed (or its writer thread fails) before
+     *      the insertion is applied
+     * @throws NullPointerException when the provided data argument is null
+     * @throws IllegalStateException when this writer has been closed
+     */
+    public CompletableFuture<Boolean> insert(T data) throws NullPointerException, IllegalStateException {
+        return submit(data, true);
+    }
+
+    /**
+     * Queues a removal of data from the tree.
+     * @param data to be removed from the tree
+     * @return a future that completes with true once data is removed, or exceptionally with an
+     *      IllegalArgumentException when data is not stored in the tree, or with an
+     *      IllegalStateException when this writer is closed (or its writer thread fails) before
+     *      the removal is applied
+     * @throws NullPointerException when the provided data argument is null
+     * @throws IllegalStateException when this writer has been closed
+     */
+    public CompletableFuture<Boolean> remove(T data) throws NullPointerException, IllegalStateException {
+        return submit(data, false);
+    }
+
+    private CompletableFuture<Boolean> submit(T data, boolean isInsert) {
+        // null references cannot be stored within the tree
+        if (data == null) throw new NullPointerException(
+                "This RedBlackTree cannot store null references.");
+        if (closed) throw new IllegalStateException(CLOSED_MESSAGE);
+
+        Mutation<T> mutation = new Mutation<>(data, isInsert);
+        queue.offer(mutation);
+        if (writerParked.get() && writerParked.compareAndSet(true, false)) {
+            LockSupport.unpark(writer);
+        }
+        // the writer may have finished its final sweep before our offer landed; exactly one of us
+        // gets to take the mutation back out of the queue, so it is never left hanging
+        if (terminated && queue.remove(mutation)) {
+            mutation.result.completeExceptionally(new IllegalStateException(CLOSED_MESSAGE));
+        }
+        return mutation.result;
+    }
+
+    /**
+     * Stops accepting new mutations, waits for every mutation already queued to be applied, and
+     * stops the writer thread. The tree may be used directly once this returns; the futures of the
+     * last batch may still be completing on the completion executor. If the calling thread is
+     * interrupted while waiting, it keeps waiting and its interrupt status is restored afterwards.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writer);
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Main loop of the writer thread. Waits for a first mutation, then keeps collecting until the
+     * batch is full or maxDelayNanos has passed, and applies the batch. When the queue runs dry
+     * before the batch is full, the writer sleeps until the deadline without being woken by new
+     * mutations (only close() wakes it), so the delay actually gathers a batch. Exits once closed
+     * and the queue is empty, or as soon as anything throws out of a batch.
+     */
+    private void runWriter() {
+        ArrayList<Mutation<T>> batch = new ArrayList<>(maxBatchSize);
+        Throwable failure = null;
+        try {
+            while (true) {
+                Mutation<T> next = queue.poll();
+                if (next == null) {
+                    if (closed) break;
+                    // publish the flag before re-checking, so a producer that offered after our poll
+                    // either is seen here or sees the flag and unparks us
+                    writerParked.set(true);
+                    if (queue.isEmpty() && !closed) {
+                        LockSupport.park(this);
+                    }
+                    writerParked.set(false);
+                    continue;
+                }
+                batch.add(next);
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatchSize) {
+                    next = queue.poll();
+                    if (next != null) {
+                        batch.add(next);
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0 || closed) break;
+                    LockSupport.parkNanos(this, remaining);
+                }
+                applyBatch(batch);
+                completeBatch(batch);
+                batch = new ArrayList<>(maxBatchSize);
+            }
+        } catch (Throwable t) {
+            // the writer cannot go on, so stop accepting mutations; mutations of the held batch that
+            // already reached the tree report their real outcome, the rest fail with t
+            failure = t;
+            closed = true;
+            for (Mutation<T> mutation : batch) {
+                if (mutation.done) {
+                    completeMutation(mutation);
+                } else {
+                    mutation.result.completeExceptionally(t);
+                }
+            }
+        }
+
+        // fail anything that was offered between the last poll and a producer seeing terminated
+        terminated = true;
+        Mutation<T> leftover;
+        while ((leftover = queue.poll()) != null) {
+            leftover.result.completeExceptionally(failure == null
+                    ? new IllegalStateException(CLOSED_MESSAGE)
+                    : new IllegalStateException("This BatchedRedBlackTreeWriter's writer thread failed.", failure));
+        }
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown(); // completion tasks that were already handed over still run
+        }
+
+        // every pending future already carries the failure; only an Error is worth surfacing again
+        if (failure instanceof Error) throw (Error) failure;
+    }
+
+    /**
+     * Sorts the batch by key and applies it to the tree, so consecutive mutations walk mostly the
+     * same path down the tree. The sort is stable, so mutations on the same key are still applied
+     * in the order they were queued. Each outcome is recorded on its mutation for completeBatch.
+     * @param batch the mutations to apply
+     */
+    private void applyBatch(ArrayList<Mutation<T>> batch) {
+        batch.sort(Comparator.comparing(mutation -> mutation.data));
+        for (Mutation<T> mutation : batch) {
+            try {
+                mutation.applied = mutation.isInsert ? tree.insert(mutation.data) : tree.remove(mutation.data);
+            } catch (RuntimeException e) {
+                mutation.failure = e;
+            }
+            mutation.done = true;
+        }
+    }
+
+    /**
+     * Hands an applied batch to the completion executor, which completes every future in it, so
+     * producer callbacks never run on (or stall) the writer thread. When the executor rejects the
+     * task (it was shut down or is saturated), the batch is completed on a new daemon thread
+     * instead, since its mutations have already been applied and must not be reported as failed.
+     * @param batch the mutations that applyBatch has recorded outcomes for
+     */
+    private void completeBatch(ArrayList<Mutation<T>> batch) {
+        Runnable completion = () -> {
+            for (Mutation<T> mutation : batch) {
+                completeMutation(mutation);
+            }
+        };
+        try {
+            completionExecutor.execute(completion);
+        } catch (RejectedExecutionException e) {
+            Thread completer = new Thread(completion, "rbt-batch-completer");
+            completer.setDaemon(true);
+            completer.start();
+        }
+    }
+
+    /**
+     * Completes the future of a mutation with the outcome applyBatch recorded for it.
+     * @param mutation a mutation whose outcome is done
+     */
+    private void completeMutation(Mutation<T> mutation) {
+        if (mutation.failure != null) {
+            mutation.result.completeExceptionally(mutation.failure);
+        } else {
+            mutation.result.complete(mutation.applied);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+// --== CS400 Spring 2023 File Header Information ==--
+// Name: Sai Gungurthi
+// Email: sgungurthi@wisc.edu
+// Team: AK
+// TA: Gary Dahl
+// Lecturer: Gary Dahl
+// Notes to Grader: None
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the throughput of many producer threads mutating one shared RedBlackTree through a
+ * global lock against the same producers going through a BatchedRedBlackTreeWriter. Every producer
+ * inserts its own set of keys and then removes every other one.
+ *
+ * The batched writer is measured twice. In the synchronous run every producer waits for each
+ * operation before issuing the next, like a request handler would, so at most one operation per
+ * producer is in flight and batches never grow past the producer count; this measures
+ * request/response latency. In the pipelined run every producer keeps up to inFlight operations
+ * outstanding, which lets batches fill up to maxBatchSize and measures the writer's throughput.
+ *
+ * Usage: java BatchedRedBlackTreeWriterBenchmark [producers] [opsPerProducer] [maxBatchSize] [maxDelayMicros] [inFlight]
+ */
+public class BatchedRedBlackTreeWriterBenchmark {
+
+    /**
+     * A single producer's workload, run once per producer thread.
+     */
+    private interface Producer {
+        void run(int producerIndex) throws Exception;
+    }
+
+    /**
+     * Main method
+     * @param args optional producer count, operations per producer, max batch size, max delay in
+     *      microseconds, and operations each producer keeps in flight in the pipelined run
+     */
+    public static void main(String[] args) throws Exception {
+        int producers = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        int opsPerProducer = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int maxBatchSize = args.length > 2 ? Integer.parseInt(args[2]) : 256;
+        long maxDelayMicros = args.length > 3 ? Long.parseLong(args[3]) : 50;
+        int inFlight = args.length > 4 ? Integer.parseInt(args[4]) : 64;
+        int insertsPerProducer = opsPerProducer / 2;
+
+        System.out.println("producers=" + producers + " opsPerProducer=" + opsPerProducer +
+                " maxBatchSize=" + maxBatchSize + " maxDelayMicros=" + maxDelayMicros + " inFlight=" + inFlight);
+
+        // one warmup round of each, then the measured round
+        for (int round = 0; round < 2; round++) {
+            String label = round == 0 ? "warmup   " : "measured ";
+
+            RedBlackTree<Integer> lockedTree = new RedBlackTree<>();
+            long lockedNanos = runProducers(producers, producerIndex -> {
+                for (int i = 0; i < insertsPerProducer; i++) {
+                    synchronized (lockedTree) {
+                        lockedTree.insert(key(producerIndex, i, producers));
+                    }
+                }
+                for (int i = 0; i < insertsPerProducer; i += 2) {
+                    synchronized (lockedTree) {
+                        lockedTree.remove(key(producerIndex, i, producers));
+                    }
+                }
+            });
+
+            RedBlackTree<Integer> syncTree = new RedBlackTree<>();
+            long syncNanos = runBatched(syncTree, producers, insertsPerProducer, maxBatchSize, maxDelayMicros, 1);
+            RedBlackTree<Integer> pipelinedTree = new RedBlackTree<>();
+            long pipelinedNanos = runBatched(pipelinedTree, producers, insertsPerProducer, maxBatchSize, maxDelayMicros,
+                    inFlight);
+
+            if (lockedTree.size() != syncTree.size() || lockedTree.size() != pipelinedTree.size()) {
+                throw new IllegalStateException("Tree sizes differ: " + lockedTree.size() + " vs " + syncTree.size() +
+                        " vs " + pipelinedTree.size());
+            }
+            long totalOps = (long) producers * (insertsPerProducer + (insertsPerProducer + 1) / 2);
+            System.out.println(label + "global lock:         " + opsPerSecond(totalOps, lockedNanos) + " ops/s");
+            System.out.println(label + "batched, sync:       " + opsPerSecond(totalOps, syncNanos) + " ops/s");
+            System.out.println(label + "batched, pipelined:  " + opsPerSecond(totalOps, pipelinedNanos) + " ops/s");
+        }
+    }
+
+    /**
+     * Runs the producers through a BatchedRedBlackTreeWriter on the provided tree. Each producer
+     * waits for its oldest outstanding operation once it has inFlight of them. A producer's remove
+     * of a key is always queued after its insert, so it is applied after it.
+     * @return the elapsed time in nanoseconds
+     */
+    private static long runBatched(RedBlackTree<Integer> tree, int producers, int insertsPerProducer,
+            int maxBatchSize, long maxDelayMicros, int inFlight) throws InterruptedException {
+        BatchedRedBlackTreeWriter<Integer> batchWriter = new BatchedRedBlackTreeWriter<>(
+                tree, maxBatchSize, maxDelayMicros, TimeUnit.MICROSECONDS);
+        long nanos = runProducers(producers, producerIndex -> {
+            ArrayDeque<CompletableFuture<Boolean>> outstanding = new ArrayDeque<>(inFlight);
+            for (int i = 0; i < insertsPerProducer; i++) {
+                if (outstanding.size() == inFlight) outstanding.poll().join();
+                outstanding.add(batchWriter.insert(key(producerIndex, i, producers)));
+            }
+            for (int i = 0; i < insertsPerProducer; i += 2) {
+                if (outstanding.size() == inFlight) outstanding.poll().join();
+                outstanding.add(batchWriter.remove(key(producerIndex, i, producers)));
+            }
+            while (!outstanding.isEmpty()) {
+                outstanding.poll().join();
+            }
+        });
+        batchWriter.close();
+        return nanos;
+    }
+
+    /**
+     * Interleaves the keys of all producers so that each batch covers much of the tree.
+     */
+    private static int key(int producerIndex, int i, int producers) {
+        return i * producers + producerIndex;
+    }
+
+    private static long opsPerSecond(long ops, long nanos) {
+        return ops * TimeUnit.SECONDS.toNanos(1) / Math.max(1, nanos);
+    }
+
+    /**
+     * Starts one thread per producer, releases them all at once, and times how long it takes until
+     * every producer has finished.
+     * @return the elapsed time in nanoseconds
+     */
+    private static long runProducers(int producers, Producer producer) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(producers);
+        for (int p = 0; p < producers; p++) {
+            int producerIndex = p;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    producer.run(producerIndex);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                } finally {
+                    done.countDown();
+                }
+            });
+            thread.start();
+        }
+        long startTime = System.nanoTime();
+        start.countDown();
+        done.await();
+        return System.nanoTime() - startTime;
+    }
+}
@@ -0,0 +1,260 @@
+// --== CS400 Spring 2023 File Header Information ==--
+// Name: Sai Gungurthi
+// Email: sgungurthi@wisc.edu
+// Team: AK
+// TA: Gary Dahl
+// Lecturer: Gary Dahl
+// Notes to Grader: None
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for BatchedRedBlackTreeWriter.
+ */
+public class BatchedRedBlackTreeWriterTest {
+
+    /**
+     * Records the order in which the writer applies insertions.
+     */
+    private static class RecordingTree extends RedBlackTree<Integer> {
+        public final List<Integer> inserted = new ArrayList<>();
+
+        @Override
+        public boolean insert(Integer data) {
+            inserted.add(data);
+            return super.insert(data);
+        }
+    }
+
+    /**
+     * A key whose compareTo always throws, to make the writer fail while sorting a batch.
+     */
+    private static class ExplodingKey implements Comparable<ExplodingKey> {
+        @Override
+        public int compareTo(ExplodingKey other) {
+            throw new UnsupportedOperationException("ExplodingKey cannot be compared.");
+        }
+    }
+
+    /**
+     * Tests that mutations queued from several threads all end up in the tree.
+     */
+    @Test
+    public void testConcurrentInserts() throws Exception {
+        RedBlackTree<Integer> actual = new RedBlackTree<>();
+        BatchedRedBlackTreeWriter<Integer> batchWriter =
+                new BatchedRedBlackTreeWriter<>(actual, 16, 1, TimeUnit.MILLISECONDS);
+        ConcurrentLinkedQueue<CompletableFuture<Boolean>> results = new ConcurrentLinkedQueue<>();
+        Thread[] producers = new Thread[8];
+        for (int i = 0; i < producers.length; i++) {
+            int offset = i;
+            producers[i] = new Thread(() -> {
+                for (int j = 0; j < 100; j++) {
+                    results.add(batchWriter.insert(j * producers.length + offset));
+                }
+            });
+            producers[i].start();
+        }
+        for (Thread producer : producers) {
+            producer.join(5000);
+            assertFalse(producer.isAlive());
+        }
+        for (CompletableFuture<Boolean> result : results) {
+            assertTrue(result.get(5, TimeUnit.SECONDS));
+        }
+        batchWriter.close();
+        assertEquals(800, actual.size());
+        for (int i = 0; i < 800; i++) {
+            assertTrue(actual.contains(i));
+        }
+    }
+
+    /**
+     * Tests that an insert followed by a remove of the same key is applied in queued order, and that
+     * a failed operation completes its future exceptionally without affecting the rest of the batch.
+     */
+    @Test
+    public void testSameKeyOrderAndFailures() throws Exception {
+        RedBlackTree<Integer> actual = new RedBlackTree<>();
+        BatchedRedBlackTreeWriter<Integer> batchWriter =
+                new BatchedRedBlackTreeWriter<>(actual, 64, 50, TimeUnit.MILLISECONDS);
+        CompletableFuture<Boolean> insertTen = batchWriter.insert(10);
+        CompletableFuture<Boolean> removeTen = batchWriter.remove(10);
+        CompletableFuture<Boolean> insertFive = batchWriter.insert(5);
+        CompletableFuture<Boolean> insertFiveAgain = batchWriter.insert(5);
+        CompletableFuture<Boolean> removeMissing = batchWriter.remove(99);
+        batchWriter.close();
+
+        assertTrue(insertTen.get(5, TimeUnit.SECONDS));
+        assertTrue(removeTen.get(5, TimeUnit.SECONDS));
+        assertTrue(insertFive.get(5, TimeUnit.SECONDS));
+        ExecutionException duplicate = assertThrows(ExecutionException.class,
+                () -> insertFiveAgain.get(5, TimeUnit.SECONDS));
+        assertTrue(duplicate.getCause() instanceof IllegalArgumentException);
+        ExecutionException missing = assertThrows(ExecutionException.class,
+                () -> removeMissing.get(5, TimeUnit.SECONDS));
+        assertTrue(missing.getCause() instanceof IllegalArgumentException);
+        assertEquals("[ 5 ]", actual.toInOrderString().trim());
+    }
+
+    /**
+     * Tests that a closed writer rejects new mutations.
+     */
+    @Test
+    public void testClosedWriterRejects() {
+        BatchedRedBlackTreeWriter<Integer> batchWriter =
+                new BatchedRedBlackTreeWriter<>(new RedBlackTree<Integer>(), 8, 0, TimeUnit.MILLISECONDS);
+        batchWriter.close();
+        assertThrows(IllegalStateException.class, () -> batchWriter.insert(1));
+        assertThrows(NullPointerException.class, () -> batchWriter.remove(null));
+    }
+
+    /**
+     * Tests that a max batch size of 1 applies mutations one at a time in queued order, while a
+     * larger batch is sorted by key before it is applied.
+     */
+    @Test
+    public void testMaxBatchSize() throws Exception {
+        RecordingTree unbatched = new RecordingTree();
+        BatchedRedBlackTreeWriter<Integer> unbatchedWriter =
+                new BatchedRedBlackTreeWriter<>(unbatched, 1, 5, TimeUnit.SECONDS);
+        unbatchedWriter.insert(3);
+        unbatchedWriter.insert(1);
+        unbatchedWriter.insert(2).get(5, TimeUnit.SECONDS);
+        unbatchedWriter.close();
+        assertEquals(List.of(3, 1, 2), unbatched.inserted);
+
+        RecordingTree batched = new RecordingTree();
+        BatchedRedBlackTreeWriter<Integer> batchedWriter =
+                new BatchedRedBlackTreeWriter<>(batched, 3, 5, TimeUnit.SECONDS);
+        batchedWriter.insert(3);
+        batchedWriter.insert(1);
+        batchedWriter.insert(2).get(5, TimeUnit.SECONDS);
+        batchedWriter.close();
+        assertEquals(List.of(1, 2, 3), batched.inserted);
+    }
+
+    /**
+     * Tests that a lone mutation is applied right away with a max delay of zero, and after roughly
+     * the max delay otherwise.
+     */
+    @Test
+    public void testMaxDelay() throws Exception {
+        BatchedRedBlackTreeWriter<Integer> immediateWriter =
+                new BatchedRedBlackTreeWriter<>(new RedBlackTree<Integer>(), 64, 0, TimeUnit.MILLISECONDS);
+        assertTrue(immediateWriter.insert(1).get(1, TimeUnit.SECONDS));
+        immediateWriter.close();
+
+        BatchedRedBlackTreeWriter<Integer> delayedWriter =
+                new BatchedRedBlackTreeWriter<>(new RedBlackTree<Integer>(), 64, 100, TimeUnit.MILLISECONDS);
+        long start = System.nanoTime();
+        assertTrue(delayedWriter.insert(1).get(2, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+        delayedWriter.close();
+    }
+
+    /**
+     * Tests that a callback on a future can wait on another mutation without deadlocking the
+     * writer, since futures are completed off the writer thread.
+     */
+    @Test
+    public void testCallbackCanWaitOnWriter() throws Exception {
+        RedBlackTree<Integer> actual = new RedBlackTree<>();
+        BatchedRedBlackTreeWriter<Integer> batchWriter =
+                new BatchedRedBlackTreeWriter<>(actual, 8, 0, TimeUnit.MILLISECONDS);
+        CompletableFuture<Boolean> chained = batchWriter.insert(1).thenApply(x -> batchWriter.insert(2).join());
+        assertTrue(chained.get(1, TimeUnit.SECONDS));
+        batchWriter.close();
+        assertEquals("[ 1, 2 ]", actual.toInOrderString().trim());
+    }
+
+    /**
+     * Tests that producers submitting while close() runs never end up with a future that is left
+     * incomplete: each one is either applied or fails with an IllegalStateException.
+     */
+    @Test
+    public void testCloseRace() throws Exception {
+        for (int round = 0; round < 10; round++) {
+            BatchedRedBlackTreeWriter<Integer> batchWriter =
+                    new BatchedRedBlackTreeWriter<>(new RedBlackTree<Integer>(), 16, 0, TimeUnit.MILLISECONDS);
+            ConcurrentLinkedQueue<CompletableFuture<Boolean>> results = new ConcurrentLinkedQueue<>();
+            Thread[] producers = new Thread[4];
+            for (int i = 0; i < producers.length; i++) {
+                int offset = i;
+                producers[i] = new Thread(() -> {
+                    try {
+                        for (int j = 0; ; j++) {
+                            results.add(batchWriter.insert(j * producers.length + offset));
+                        }
+                    } catch (IllegalStateException e) {
+                        // the writer has been closed
+                    }
+                });
+                producers[i].start();
+            }
+            Thread.sleep(5);
+            batchWriter.close();
+            for (Thread producer : producers) {
+                producer.join(5000);
+                assertFalse(producer.isAlive());
+            }
+            for (CompletableFuture<Boolean> result : results) {
+                try {
+                    assertTrue(result.get(5, TimeUnit.SECONDS));
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof IllegalStateException);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests that a compareTo that throws while a batch is sorted fails that batch's futures and
+     * shuts the writer down instead of leaving futures incomplete.
+     */
+    @Test
+    public void testThrowingComparator() throws Exception {
+        BatchedRedBlackTreeWriter<ExplodingKey> batchWriter =
+                new BatchedRedBlackTreeWriter<>(new RedBlackTree<ExplodingKey>(), 2, 5, TimeUnit.SECONDS);
+        CompletableFuture<Boolean> first = batchWriter.insert(new ExplodingKey());
+        CompletableFuture<Boolean> second = batchWriter.insert(new ExplodingKey());
+        ExecutionException firstFailure = assertThrows(ExecutionException.class,
+                () -> first.get(5, TimeUnit.SECONDS));
+        assertTrue(firstFailure.getCause() instanceof UnsupportedOperationException);
+        ExecutionException secondFailure = assertThrows(ExecutionException.class,
+                () -> second.get(5, TimeUnit.SECONDS));
+        assertTrue(secondFailure.getCause() instanceof UnsupportedOperationException);
+
+        assertThrows(IllegalStateException.class, () -> batchWriter.insert(new ExplodingKey()));
+        batchWriter.close();
+    }
+
+    /**
+     * Tests that mutations are still reported with their real outcome when the completion executor
+     * rejects the task that would complete them.
+     */
+    @Test
+    public void testRejectingExecutor() throws Exception {
+        ExecutorService rejecting = Executors.newSingleThreadExecutor();
+        rejecting.shutdown();
+        RedBlackTree<Integer> actual = new RedBlackTree<>();
+        BatchedRedBlackTreeWriter<Integer> batchWriter =
+                new BatchedRedBlackTreeWriter<>(actual, 8, 0, TimeUnit.MILLISECONDS, rejecting);
+        assertTrue(batchWriter.insert(42).get(5, TimeUnit.SECONDS));
+        ExecutionException duplicate = assertThrows(ExecutionException.class,
+                () -> batchWriter.insert(42).get(5, TimeUnit.SECONDS));
+        assertTrue(duplicate.getCause() instanceof IllegalArgumentException);
+        batchWriter.close();
+        assertTrue(actual.contains(42));
+        assertEquals(1, actual.size());
+    }
+}
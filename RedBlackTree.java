@@ -6,7 +6,11 @@
 // Lecturer: Gary Dahl
 // Notes to Grader: None
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
 import java.util.Stack;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
@@ -69,43 +73,34 @@ public class RedBlackTree<T extends Comparable<T>> implements SortedCollectionIn
      * Resolves any red-black tree property violations that are introduced by inserting each new red node into a
      * red-black tree.
      *
-     * @param redNode node being inserted into RBT, or in case 3, a node being recursively called
+     * @param redNode node being inserted into RBT; in case 3 the fix-up continues from its grandparent
      */
     protected void enforceRBTreePropertiesAfterInsert(Node<T> redNode) {
-        // case 1: parent's sibling is black and parent and child are on same side
-        // solution: rotate and color swap parent and grandparent
-        if (parent(redNode) != null) {
-            enforceCaseOneHelper(redNode);
+        // the only violation an insertion can introduce is a red node with a red parent
+        while (parent(redNode) != null && parent(redNode).blackHeight == 0 && grandparent(redNode) != null) {
+            // case 3: parent's sibling is red
+            // solution: toggle color of parent, parent's sibling, and grandparent; check for violations further up tree
+            if (uncle(redNode) != null && uncle(redNode).blackHeight == 0) {
+                toggleColorHelper(parent(redNode));
+                toggleColorHelper(uncle(redNode));
+                toggleColorHelper(grandparent(redNode));
+                redNode = grandparent(redNode);
+                continue;
+            }
 
             // case 2: parent's sibling is black and parent and child are NOT on same side
             // solution: rotate red nodes, then do case 1
-            if ((redNode.isRightChild() && parent(redNode).isLeftChild()) &&
-                    (uncle(redNode) == null || uncle(redNode).blackHeight == 1)) {
-                Node<T> tempParent = parent(redNode);
-                rotate(redNode, parent(redNode));
-                enforceCaseOneHelper(tempParent);
-            }
-
-            if ((redNode.isLeftChild() && parent(redNode).isRightChild()) &&
-                    (uncle(redNode) == null || uncle(redNode).blackHeight == 1)) {
+            if ((redNode.isRightChild() && parent(redNode).isLeftChild()) ||
+                    (redNode.isLeftChild() && parent(redNode).isRightChild())) {
                 Node<T> tempParent = parent(redNode);
                 rotate(redNode, parent(redNode));
-                enforceCaseOneHelper(tempParent);
+                redNode = tempParent;
             }
 
-            // case 3: parent's sibling is red
-            // solution: toggle color of parent, parent's sibling, and grandparent; check for violations further up tree
-            if ((parent(redNode).isRightChild() || parent(redNode).isLeftChild()) &&
-                    (uncle(redNode) != null && uncle(redNode).blackHeight == 0)) {
-                toggleColorHelper(parent(redNode));
-                toggleColorHelper(grandparent(redNode));
-                toggleColorHelper(uncle(redNode));
-                if (!root.equals(grandparent(redNode)) && grandparent(grandparent(redNode)) != null) {
-                    if (grandparent(redNode).blackHeight == 0 && parent(grandparent(redNode)).blackHeight == 0) {
-                        enforceRBTreePropertiesAfterInsert(grandparent(redNode));
-                    }
-                }
-            }
+            // case 1: parent's sibling is black and parent and child are on same side
+            // solution: rotate and color swap parent and grandparent
+            enforceCaseOneHelper(redNode);
+            break;
         }
 
         root.blackHeight = 1;
@@ -644,6 +639,64 @@ public class RedBlackTree<T extends Comparable<T>> implements SortedCollectionIn
         assertEquals("[ 20(1), 40(1), 60(1), 80(0) ]", actualInOrderString);
     }
 
+    /**
+     * Tests RBT insertion with values that are not inserted in ascending or descending order, so the
+     * cases are combined and repeated further up the tree. Also checks that every shuffled insertion
+     * order keeps the red-black tree properties.
+     */
+    @Test
+    public void testNonMonotonicInsertion() {
+        RedBlackTree<Integer> actual = new RedBlackTree<>();
+        actual.insert(20);
+        actual.insert(10);
+        actual.insert(30);
+        actual.insert(5);
+        actual.insert(15);
+        actual.insert(12);
+        String actualLevelOrderString = actual.toLevelOrderStringWithColor().trim();
+        String actualInOrderString = actual.toInOrderStringWithColor().trim();
+        assertEquals("[ 20(1), 10(0), 30(1), 5(1), 15(1), 12(0) ]", actualLevelOrderString);
+        assertEquals("[ 5(1), 10(0), 12(0), 15(1), 20(1), 30(1) ]", actualInOrderString);
+
+        Random random = new Random(400);
+        for (int trial = 0; trial < 100; trial++) {
+            List<Integer> values = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                values.add(i);
+            }
+            Collections.shuffle(values, random);
+            RedBlackTree<Integer> shuffled = new RedBlackTree<>();
+            for (int value : values) {
+                shuffled.insert(value);
+            }
+            assertEquals(200, shuffled.size());
+            assertEquals(1, shuffled.root.blackHeight);
+            shuffled.checkRBTreeProperties(shuffled.root);
+        }
+    }
+
+    /**
+     * Helper for the tests that fails when a red node has a red child or when the two subtrees of
+     * a node have different black heights.
+     *
+     * @param node the root of the subtree to check
+     * @return the black height of the subtree, counting the null leaves
+     */
+    private int checkRBTreeProperties(Node<T> node) {
+        if (node == null) {
+            return 1;
+        }
+        for (int i = 1; i <= 2; i++) {
+            if (node.context[i] != null) {
+                assertEquals(node, node.context[i].context[0]);
+                assertFalse(node.blackHeight == 0 && node.context[i].blackHeight == 0);
+            }
+        }
+        int leftBlackHeight = checkRBTreeProperties(node.context[1]);
+        assertEquals(leftBlackHeight, checkRBTreeProperties(node.context[2]));
+        return leftBlackHeight + node.blackHeight;
+    }
+
     /**
      * Main method
      * @param args